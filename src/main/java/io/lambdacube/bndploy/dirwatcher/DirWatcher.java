@@ -20,9 +20,12 @@ import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.BiMap;
@@ -57,30 +60,48 @@ public class DirWatcher {
     private Set<Path> currentModified = Sets.newConcurrentHashSet();
     private Set<Path> currentDeleted = Sets.newConcurrentHashSet();
 
-    private Timer timer;
+    private Set<Path> knownFiles = Sets.newConcurrentHashSet();
+
+    private WatchFilter filter;
+
+    private ScheduledExecutorService scheduler;
+
+    private ScheduledFuture<?> trigger;
 
     private int triggerTime;
 
-    public DirWatcher(Path watchedDir, int triggerTime, FileChangeListener listener, ThreadFactory threadFactory) {
+    public DirWatcher(Path watchedDir, int triggerTime, FileChangeListener listener, WatchFilter filter,
+            ThreadFactory threadFactory) {
         this.watchedDir = watchedDir;
         this.triggerTime = triggerTime;
         this.listener = listener;
+        this.filter = filter;
         this.threadFactory = threadFactory;
 
         this.watchService = null;
         this.watchThread = null;
         this.pathToKeyMap = HashBiMap.create();
 
-        this.timer = null;
+        this.scheduler = null;
+        this.trigger = null;
+    }
+
+    public DirWatcher(Path watchedDir, int triggerTime, FileChangeListener listener, ThreadFactory threadFactory) {
+        this(watchedDir, triggerTime, listener, WatchFilter.ACCEPT_ALL, threadFactory);
+    }
+
+    public DirWatcher(Path watchedDir, int triggerTime, FileChangeListener listener, WatchFilter filter) {
+        this(watchedDir, triggerTime, listener, filter, r -> new Thread(r, "WatchService Thread"));
     }
 
     public DirWatcher(Path watchedDir, int triggerTime, FileChangeListener listener) {
-        this(watchedDir, triggerTime, listener, r -> new Thread(r, "WatchService Thread"));
+        this(watchedDir, triggerTime, listener, WatchFilter.ACCEPT_ALL);
     }
 
     public void start() throws IOException {
         LOGGER.info("Watching directory {} recursively", watchedDir);
         watchService = FileSystems.getDefault().newWatchService();
+        scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
 
         watchThread = threadFactory.newThread((new Runnable() {
             @Override
@@ -110,6 +131,7 @@ public class DirWatcher {
             try {
                 watchService.close();
                 watchThread.interrupt();
+                scheduler.shutdownNow();
             } catch (Exception e) {
                 // not caring right now
             }
@@ -117,17 +139,35 @@ public class DirWatcher {
     }
 
     private synchronized void resetTrigger(Path dirPath, List<WatchEvent<?>> pollEvents) {
+        boolean accepted = false;
         for (WatchEvent<?> event : pollEvents) {
+            if (OVERFLOW == event.kind()) {
+                continue;
+            }
             Path root = watchedDir;
             if (dirPath != null) {
                 root = dirPath;
             }
             Path path = root.resolve((Path) event.context());
+            boolean directory = pathToKeyMap.containsKey(path) || Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS);
+            if (!filter.accept(path, directory) || inExcludedDirectory(path)) {
+                // temporary files (foo.jar.tmp, foo.jar.part, ...) never reach the listener, so a
+                // foo.jar.tmp -> foo.jar move only shows up as the create of foo.jar
+                LOGGER.trace("filtered event : " + event.kind() + " : " + path);
+                continue;
+            }
+            accepted = true;
             LOGGER.trace("event : " + event.kind() + " : " + path);
             if (StandardWatchEventKinds.ENTRY_CREATE == event.kind()) {
-                currentCreated.add(path);
+                if (knownFiles.contains(path)) {
+                    // moved over an existing file (foo.jar.tmp -> foo.jar): its contents changed
+                    currentModified.add(path);
+                } else {
+                    currentCreated.add(path);
+                }
             }
             if (StandardWatchEventKinds.ENTRY_DELETE == event.kind()) {
+                knownFiles.remove(path);
                 currentDeleted.add(path);
             }
             if (StandardWatchEventKinds.ENTRY_MODIFY == event.kind()) {
@@ -135,9 +175,14 @@ public class DirWatcher {
             }
         }
 
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
+        if (!accepted) {
+            // only filtered events, don't delay the pending trigger
+            return;
+        }
+
+        if (trigger != null) {
+            trigger.cancel(false);
+            trigger = null;
         }
         
         currentModified.removeAll(currentCreated);
@@ -152,29 +197,42 @@ public class DirWatcher {
         LOGGER.trace("created: " + Joiner.on(",").join(created));
         LOGGER.trace("deleted: "+ Joiner.on(",").join(deleted));
         LOGGER.trace("modified: " + Joiner.on(",").join(modified));
-        timer = new Timer("DirWatcher");
-        timer.schedule(new TimerTask() {
+        trigger = scheduler.schedule(new Runnable() {
             @Override
             public void run() {
-
-                if (!created.isEmpty()) {
-                    listener.filesCreated(created);
-                }
-                if (!deleted.isEmpty()) {
-                    listener.filesDeleted(deleted);
-                }
-                if (!modified.isEmpty()) {
-                    listener.filesUpdated(modified);
+                try {
+                    if (!created.isEmpty()) {
+                        listener.filesCreated(created);
+                    }
+                    if (!deleted.isEmpty()) {
+                        listener.filesDeleted(deleted);
+                    }
+                    if (!modified.isEmpty()) {
+                        listener.filesUpdated(modified);
+                    }
+                } catch (CancellationException e) {
+                    LOGGER.debug("Handling changes in {} was cancelled", watchedDir);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Error while handling changes in {}", watchedDir, e);
+                } finally {
+                    currentCreated.clear();
+                    currentDeleted.clear();
+                    currentModified.clear();
+
+                    installWatcherRecursively();
+                    cancelWatchDirs();
                 }
-                
-                currentCreated.clear();
-                currentDeleted.clear();
-                currentModified.clear();
+            }
+        }, triggerTime, TimeUnit.MILLISECONDS);
+    }
 
-                installWatcherRecursively();
-                cancelWatchDirs();
+    private boolean inExcludedDirectory(Path path) {
+        for (Path dir = path.getParent(); dir != null && !dir.equals(watchedDir); dir = dir.getParent()) {
+            if (!filter.accept(dir, true)) {
+                return true;
             }
-        }, triggerTime);
+        }
+        return false;
     }
 
     private synchronized void installWatcherRecursively() {
@@ -183,12 +241,18 @@ public class DirWatcher {
             Files.walkFileTree(watchedDir, new FileVisitor<Path>() {
                 @Override
                 public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!dir.equals(watchedDir) && !filter.accept(dir, true)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
                     watchDir(dir);
                     return FileVisitResult.CONTINUE;
                 }
 
                 @Override
                 public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (filter.accept(file, false)) {
+                        knownFiles.add(file);
+                    }
                     return FileVisitResult.CONTINUE;
                 }
 
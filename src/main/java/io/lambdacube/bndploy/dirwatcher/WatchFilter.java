@@ -0,0 +1,55 @@
+package io.lambdacube.bndploy.dirwatcher;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Include/exclude globs matched against file names. Includes only apply to
+ * files (directories are always followed), excludes apply to both: an
+ * excluded directory hides its whole subtree.
+ */
+public final class WatchFilter {
+
+    public static final WatchFilter ACCEPT_ALL = new WatchFilter(ImmutableList.of(), ImmutableList.of());
+
+    private final ImmutableList<PathMatcher> includes;
+    private final ImmutableList<PathMatcher> excludes;
+
+    public WatchFilter(List<String> includeGlobs, List<String> excludeGlobs) {
+        this.includes = compile(includeGlobs);
+        this.excludes = compile(excludeGlobs);
+    }
+
+    private static ImmutableList<PathMatcher> compile(List<String> globs) {
+        ImmutableList.Builder<PathMatcher> matchers = ImmutableList.builder();
+        for (String glob : globs) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        }
+        return matchers.build();
+    }
+
+    public boolean accept(Path path, boolean directory) {
+        Path fileName = path.getFileName();
+        if (fileName == null) {
+            return true;
+        }
+        if (matches(excludes, fileName)) {
+            return false;
+        }
+        return directory || includes.isEmpty() || matches(includes, fileName);
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, Path fileName) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(fileName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,18 @@
+package io.lambdacube.bndploy.exec;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Provides the threads used by the installer: long-lived threads (watch
+ * loops, debounce schedulers) and executors for per-jar blocking tasks.
+ */
+public interface ExecutionBackend {
+
+    String getName();
+
+    ThreadFactory threadFactory(String name);
+
+    ExecutorService newTaskExecutor(String name);
+
+}
@@ -0,0 +1,31 @@
+package io.lambdacube.bndploy.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the {@link ExecutionBackend}. This is the Java 8 version, which only
+ * has platform threads; the multi-release jar overrides it on Java 21+.
+ */
+public final class ExecutionBackends {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionBackends.class);
+
+    public static final String AUTO = "auto";
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    private ExecutionBackends() {
+    }
+
+    public static ExecutionBackend create(String preference) {
+        if (!AUTO.equals(preference) && !PLATFORM.equals(preference) && !VIRTUAL.equals(preference)) {
+            LOGGER.warn("Unknown executor '{}', expected {}, {} or {}; using {}", preference, AUTO, PLATFORM, VIRTUAL,
+                    AUTO);
+        }
+        if (VIRTUAL.equals(preference)) {
+            LOGGER.warn("Virtual threads aren't available on this JVM, using platform threads");
+        }
+        return new PlatformExecutionBackend();
+    }
+
+}
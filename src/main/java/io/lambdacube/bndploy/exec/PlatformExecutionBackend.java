@@ -0,0 +1,45 @@
+package io.lambdacube.bndploy.exec;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Platform threads, with task executors bounded to the number of
+ * processors.
+ */
+public final class PlatformExecutionBackend implements ExecutionBackend {
+
+    private final int poolSize;
+
+    public PlatformExecutionBackend() {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public PlatformExecutionBackend(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    @Override
+    public String getName() {
+        return "platform threads (" + poolSize + ")";
+    }
+
+    @Override
+    public ThreadFactory threadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> new Thread(r, name + "-" + count.incrementAndGet());
+    }
+
+    @Override
+    public ExecutorService newTaskExecutor(String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+}
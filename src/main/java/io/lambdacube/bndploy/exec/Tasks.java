@@ -0,0 +1,73 @@
+package io.lambdacube.bndploy.exec;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Waiting on and shutting down installer tasks without leaving a caller
+ * blocked forever when the installer stops.
+ */
+public final class Tasks {
+
+    private Tasks() {
+    }
+
+    /**
+     * Waits for all the futures, in order. If the caller is interrupted or a
+     * task was cancelled, the remaining tasks are cancelled and a
+     * {@link CancellationException} is thrown. Task failures are rethrown as
+     * {@link UncheckedExecutionException}.
+     */
+    public static <T> List<T> getAll(List<Future<T>> futures) {
+        List<T> results = Lists.newArrayListWithCapacity(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for tasks");
+        } catch (CancellationException e) {
+            cancelAll(futures);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new UncheckedExecutionException(e.getCause());
+        }
+        return results;
+    }
+
+    private static void cancelAll(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Lets running tasks finish for up to the given time, then interrupts them
+     * and cancels the queued ones so that nobody keeps waiting on them.
+     */
+    public static void shutdown(ExecutorService executor, long timeout, TimeUnit unit) {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(timeout, unit)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Runnable pending : executor.shutdownNow()) {
+            if (pending instanceof Future) {
+                ((Future<?>) pending).cancel(false);
+            }
+        }
+    }
+
+}
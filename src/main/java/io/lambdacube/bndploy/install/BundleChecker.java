@@ -17,8 +17,6 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public final class BundleChecker {
-    private static final String SNAPSHOT_QUALIFIER = "snapshot";
-
     public enum Action {
         NONE, UPDATE, INSTALL, WRAP_AND_INSTALL, STOP_FRAMEWORK
     }
@@ -26,13 +24,14 @@ public final class BundleChecker {
     private static final Logger LOGGER = LoggerFactory.getLogger(BundleChecker.class);
 
     private final BundleTracker<Bundle> tracker;
-    private final Config config;
+    private volatile Config config;
 
     public BundleChecker(BundleContext context, Config config) {
         this.config = config;
         this.tracker = new BundleTracker<Bundle>(context, Bundle.INSTALLED | Bundle.RESOLVED | Bundle.STARTING
                 | Bundle.ACTIVE, null);
         this.tracker.open();
+        logPolicy();
     }
 
     public Action getAction(JarFile jarFile, boolean update) {
@@ -52,6 +51,7 @@ public final class BundleChecker {
             }
 
             String bsn = BundleUtils.getBsn(headerBsn);
+            BundlePolicy policy = config.namespacePolicy.lookup(bsn);
 
             Bundle[] allInstalledBundles = tracker.getBundles();
 
@@ -60,9 +60,9 @@ public final class BundleChecker {
                     .collect(Collectors.toList()) : Collections.emptyList();
 
             if (installedBundles.isEmpty()) {
-                return Action.INSTALL;
+                return decide(bsn, version, policy, Action.INSTALL, "not installed yet");
             } else {
-                if (wantUnique(bsn)) {
+                if (policy.unique) {
                     Bundle b = installedBundles.get(0);
                     if (version.equals(b.getVersion())) {
                         LOGGER.debug("Bundle {} with version {} already installed", bsn, version);
@@ -76,39 +76,45 @@ public final class BundleChecker {
                             long ilm = Long.parseLong(installedLastModified);
                             long nlm = Long.parseLong(newLastModified);
                             if (nlm != ilm) {
-                                if (!SNAPSHOT_QUALIFIER.equalsIgnoreCase(version.getQualifier())) {
+                                if (!policy.allowsUpdate(version)) {
                                     LOGGER.error(
-                                            "Different contents for bundle {} version {} that is not a snapshot!!!",
-                                            bsn, version);
-                                    return Action.NONE;
+                                            "Different contents for bundle {} version {} that can't be updated ({})!!!",
+                                            bsn, version, policy.updateMode);
+                                    return decide(bsn, version, policy, Action.NONE,
+                                            "same version with different contents, update not allowed");
                                 }
                                 LOGGER.warn("Different contents for bundle {} version {}, trying to update to newest",
                                         bsn, version);
                             }
-                            return (nlm > ilm) ? Action.UPDATE : Action.NONE;
+                            return (nlm > ilm)
+                                    ? decide(bsn, version, policy, Action.UPDATE, "same version, newer contents")
+                                    : decide(bsn, version, policy, Action.NONE, "same version, not newer");
                         }
+                        return decide(bsn, version, policy, Action.NONE, "same version, no Bnd-LastModified");
                     } else {
                         LOGGER.error("#################################################################");
                         LOGGER.error("/!\\ Bundle {} that we want unique is present with two versions: {} and {}", bsn,
                                 version, b.getVersion());
                         LOGGER.error("Stopping the framework!");
                         LOGGER.error("#################################################################");
-                        return Action.STOP_FRAMEWORK;
+                        return decide(bsn, version, policy, Action.STOP_FRAMEWORK,
+                                "unique bundle already installed with version " + b.getVersion());
                     }
                 } else {
+                    // look at every installed version, not only the first one
                     for (Bundle b : installedBundles) {
                         if (version.equals(b.getVersion())) {
-                            if (SNAPSHOT_QUALIFIER.equalsIgnoreCase(version.getQualifier()) && update) {
-                                LOGGER.warn("Snapshot bundle {} with version {} already installed, trying to update",
+                            if (update && policy.allowsUpdate(version)) {
+                                LOGGER.warn("Bundle {} with version {} already installed, trying to update",
                                         bsn, version);
-                                return Action.UPDATE;
+                                return decide(bsn, version, policy, Action.UPDATE, "same version changed on disk");
                             } else {
-                                return Action.NONE;
+                                return decide(bsn, version, policy, Action.NONE,
+                                        update ? "same version, update not allowed" : "same version already installed");
                             }
-                        } else {
-                            return Action.INSTALL;
                         }
                     }
+                    return decide(bsn, version, policy, Action.INSTALL, "other versions installed");
                 }
 
             }
@@ -121,13 +127,20 @@ public final class BundleChecker {
 
     }
 
-    private boolean wantUnique(String bsn) {
-        for (String bsnStart : config.singletonNamespaces) {
-            if (bsn.startsWith(bsnStart)) {
-                return true;
-            }
+    private static Action decide(String bsn, Version version, BundlePolicy policy, Action action, String reason) {
+        LOGGER.debug("{} {} -> {}: {} [{}]", bsn, version, action, reason, policy);
+        return action;
+    }
+
+    public void setConfig(Config config) {
+        this.config = config;
+        logPolicy();
+    }
+
+    private void logPolicy() {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(config.namespacePolicy.dump());
         }
-        return false;
     }
 
     public void dispose() {
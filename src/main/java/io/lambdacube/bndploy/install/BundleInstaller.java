@@ -2,10 +2,16 @@ package io.lambdacube.bndploy.install;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import io.lambdacube.bndploy.dirwatcher.DirWatcher;
 import io.lambdacube.bndploy.dirwatcher.FileChangeListener;
+import io.lambdacube.bndploy.dirwatcher.WatchFilter;
+import io.lambdacube.bndploy.exec.ExecutionBackend;
+import io.lambdacube.bndploy.exec.ExecutionBackends;
+import io.lambdacube.bndploy.exec.Tasks;
 import io.lambdacube.bndploy.install.BundleChecker.Action;
 import org.ops4j.pax.tinybundles.core.TinyBundles;
 import org.osgi.framework.Bundle;
@@ -24,10 +30,12 @@ import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public final class BundleInstaller implements BundleActivator {
 
@@ -39,116 +47,351 @@ public final class BundleInstaller implements BundleActivator {
 
     private BundleChecker bundleChecker;
 
-    private Config config;
+    private volatile Config config;
 
     private Map<File, DirWatcher> watchers = Maps.newConcurrentMap();
 
+    private Map<File, String> knownJars = Maps.newConcurrentMap();
+
+    private DirWatcher configWatcher;
+
+    private ExecutionBackend executionBackend;
+
+    private ExecutorService taskExecutor;
+
+    private JarDeduplicator deduplicator;
+
     @Override
     public void start(BundleContext context) {
         this.context = context;
         config = configReader.getConfig();
         bundleChecker = new BundleChecker(context, config);
 
-        deployRuntime(config.runtimeDirs);
+        executionBackend = ExecutionBackends.create(config.executor);
+        LOGGER.info("Running install tasks on {}", executionBackend.getName());
+        taskExecutor = executionBackend.newTaskExecutor("bndploy-install");
+        deduplicator = new JarDeduplicator(taskExecutor);
+
+        if (!deploy(config.runtimeDirs, config.applicationDirs)) {
+            LOGGER.error("#################################################################");
+            LOGGER.error("/!\\ Conflicting duplicate bundles, not installing anything");
+            LOGGER.error("Stopping the framework!");
+            LOGGER.error("#################################################################");
+            stopFramework();
+            return;
+        }
+
+        watchConfig();
+    }
+
+    private void watchConfig() {
+        Path configPath = configReader.getConfigPath().toAbsolutePath();
+        Path configDir = configPath.getParent();
+        if (!Files.isDirectory(configDir)) {
+            LOGGER.info("No config directory {}, config reload disabled", configDir);
+            return;
+        }
+        FileChangeListener listener = new FileChangeListener() {
+
+            @Override
+            public void filesCreated(List<Path> pathes) {
+                filesUpdated(pathes);
+            }
+
+            @Override
+            public void filesUpdated(List<Path> pathes) {
+                if (pathes.stream().anyMatch(path -> path.toAbsolutePath().equals(configPath))) {
+                    reloadConfig();
+                }
+            }
 
-        deployApplications(config.applicationDirs);
+            @Override
+            public void filesDeleted(List<Path> pathes) {
+                if (pathes.stream().anyMatch(path -> path.toAbsolutePath().equals(configPath))) {
+                    LOGGER.warn("Config {} deleted, keeping current config", configPath);
+                }
+            }
+        };
 
+        configWatcher = new DirWatcher(configDir, 1500, listener,
+                new WatchFilter(ImmutableList.of(configPath.getFileName().toString()), ImmutableList.of()),
+                executionBackend.threadFactory("bndploy-config-watch"));
+        try {
+            configWatcher.start();
+        } catch (IOException e) {
+            LOGGER.error("Couldn't start config watcher", e);
+        }
     }
 
-    private void deployRuntime(ImmutableList<String> runtimeDirs) {
-        LOGGER.info("Installing runtime bundles from : {}", Joiner.on(", ").join(runtimeDirs));
-        ImmutableList.Builder<Bundle> bundlesBuilder = ImmutableList.builder();
-        for (String dir : runtimeDirs) {
-            bundlesBuilder.addAll(installDirectory(new File(dir)));
+    /**
+     * Installs the reloaded config and applies what changed. Settings that
+     * are only read at start (the executor) need a restart. Bundles violating
+     * a namespace that became unique are reported but don't stop the
+     * framework, the rule is enforced on the next start. If the config can't
+     * be read (e.g. while an editor is saving it), the current one is kept.
+     */
+    private synchronized void reloadConfig() {
+        Config oldConfig = config;
+        Config newConfig;
+        try {
+            newConfig = configReader.readConfig();
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't read config {}, keeping current config: {}", configReader.getConfigPath(),
+                    e.toString());
+            return;
+        }
+        ConfigDiff diff = ConfigDiff.between(oldConfig, newConfig);
+
+        config = newConfig;
+        bundleChecker.setConfig(newConfig);
+
+        if (!oldConfig.executor.equals(newConfig.executor)) {
+            LOGGER.warn("Executor changed from {} to {}, restart the installer to apply it", oldConfig.executor,
+                    newConfig.executor);
+        }
+        if (diff.isEmpty()) {
+            LOGGER.debug("Config reloaded, nothing to apply");
+            return;
+        }
+        LOGGER.info("Config reloaded, applying changes");
+
+        if (diff.failOnConflictingDuplicatesChanged) {
+            LOGGER.info("Conflicting duplicates now {}", newConfig.failOnConflictingDuplicates ? "fail" : "only warn");
+        }
+
+        for (String dir : diff.removedApplicationDirs) {
+            DirWatcher watcher = watchers.remove(new File(dir));
+            if (watcher != null) {
+                LOGGER.info("Not watching application dir {} anymore", dir);
+                watcher.stop();
+            }
+        }
+
+        if (diff.watchApplicationDirsChanged || diff.watchFilterChanged) {
+            for (DirWatcher watcher : watchers.values()) {
+                watcher.stop();
+            }
+            watchers.clear();
+            if (newConfig.watchApplicationDirs) {
+                for (String dir : newConfig.applicationDirs) {
+                    if (!diff.addedApplicationDirs.contains(dir)) {
+                        startWatcher(new File(dir));
+                    }
+                }
+            }
         }
-        ImmutableList<Bundle> bundles = bundlesBuilder.build();
+
+        if (!diff.addedRuntimeDirs.isEmpty() || !diff.addedApplicationDirs.isEmpty()) {
+            if (!deploy(diff.addedRuntimeDirs.asList(), diff.addedApplicationDirs.asList())) {
+                LOGGER.error("Conflicting duplicate bundles in added directories, not deploying them."
+                        + " Fix them and save the config again to retry");
+                // keep them out of the current config so that the next reload sees them as added again
+                config = newConfig.withDirs(
+                        ImmutableList.copyOf(Iterables.filter(newConfig.runtimeDirs,
+                                dir -> !diff.addedRuntimeDirs.contains(dir))),
+                        ImmutableList.copyOf(Iterables.filter(newConfig.applicationDirs,
+                                dir -> !diff.addedApplicationDirs.contains(dir))));
+            }
+        }
+
+        if (diff.affectsPolicies()) {
+            LOGGER.info("Re-evaluating bundles under changed namespaces: {}",
+                    diff.defaultPolicyChanged ? "<all>" : Joiner.on(", ").join(diff.changedNamespaces));
+            List<Bundle> bundles = Lists.newArrayList();
+            for (Map.Entry<File, String> knownJar : knownJars.entrySet()) {
+                if (diff.affects(knownJar.getValue()) && knownJar.getKey().exists()) {
+                    Bundle b = installOrUpdateBundle(knownJar.getKey(), false, false);
+                    if (b != null) {
+                        bundles.add(b);
+                    }
+                }
+            }
+            startBundles(bundles);
+        }
+    }
+
+    /**
+     * Scans all the given directories for duplicates before touching any
+     * bundle, then installs and starts runtime bundles followed by application
+     * bundles. Returns false, without installing anything, if conflicting
+     * duplicates were found and the config asks to fail on them.
+     */
+    private boolean deploy(List<String> runtimeDirs, List<String> applicationDirs) {
+        ImmutableSet<File> runtimeJars = ImmutableSet.copyOf(collectJars(runtimeDirs, WatchFilter.ACCEPT_ALL));
+        // same filter as the watchers, so a jar is either picked up in both or in neither
+        ImmutableList<File> applicationJars = collectJars(applicationDirs, applicationFilter());
+
+        JarDeduplicator.Result scan = deduplicator.scan(ImmutableList.<File> builder()
+                .addAll(runtimeJars)
+                .addAll(applicationJars)
+                .build());
+        scan.logSummary("Scan");
+        if (scan.hasConflicts() && config.failOnConflictingDuplicates) {
+            return false;
+        }
+        deduplicator.commit(scan);
+
+        if (!runtimeDirs.isEmpty()) {
+            deployRuntime(runtimeDirs, scan.jars.stream().filter(runtimeJars::contains).collect(Collectors.toList()));
+        }
+        if (!applicationDirs.isEmpty()) {
+            deployApplications(applicationDirs, scan.jars.stream().filter(jar -> !runtimeJars.contains(jar))
+                    .collect(Collectors.toList()));
+        }
+        return true;
+    }
+
+    private void deployRuntime(List<String> runtimeDirs, List<File> jars) {
+        LOGGER.info("Installing runtime bundles from : {}", Joiner.on(", ").join(runtimeDirs));
+        List<Bundle> bundles = installJars(jars, false);
         LOGGER.info("Starting {} runtime bundles", bundles.size());
         startBundles(bundles);
     }
 
-    private void deployApplications(ImmutableList<String> applicationDirs) {
+    private void deployApplications(List<String> applicationDirs, List<File> jars) {
         LOGGER.info("Installing application bundles from : {}", Joiner.on(", ").join(applicationDirs));
-        ImmutableList.Builder<Bundle> bundlesBuilder = ImmutableList.builder();
-        for (String dir : applicationDirs) {
-            File fileDir = new File(dir);
-            bundlesBuilder.addAll(installDirectory(fileDir));
-            if (config.watchApplicationDirs) {
-                watchers.put(fileDir, createDirWatcher(fileDir));
-            }
-        }
-
-        List<Bundle> bundles = bundlesBuilder.build();
+        List<Bundle> bundles = installJars(jars, false);
         LOGGER.info("Starting {} application bundles", bundles.size());
         startBundles(bundles);
 
-        for (DirWatcher watcher : watchers.values()) {
-            try {
-                watcher.start();
-            } catch (IOException e) {
-                LOGGER.error("Couldn't start dirwatcher", e);
+        if (config.watchApplicationDirs) {
+            for (String dir : applicationDirs) {
+                startWatcher(new File(dir));
             }
         }
     }
 
-    private ImmutableList<Bundle> installDirectory(File dir) {
-        if (!dir.exists()) {
-            return ImmutableList.of();
+    private void startWatcher(File fileDir) {
+        if (watchers.containsKey(fileDir)) {
+            return;
+        }
+        DirWatcher watcher = createDirWatcher(fileDir);
+        watchers.put(fileDir, watcher);
+        try {
+            watcher.start();
+        } catch (IOException e) {
+            LOGGER.error("Couldn't start dirwatcher", e);
+        }
+    }
+
+    private WatchFilter applicationFilter() {
+        return new WatchFilter(config.watchIncludes, config.watchExcludes);
+    }
+
+    private ImmutableList<File> collectJars(List<String> dirs, WatchFilter filter) {
+        ImmutableList.Builder<File> jarsBuilder = ImmutableList.builder();
+        for (String dir : dirs) {
+            collectJars(new File(dir), jarsBuilder, filter);
+        }
+        return jarsBuilder.build();
+    }
+
+    private void collectJars(File dir, ImmutableList.Builder<File> jarsBuilder, WatchFilter filter) {
+        if (!dir.exists() || !filter.accept(dir.toPath(), true)) {
+            return;
         }
-        ImmutableList.Builder<Bundle> bundlesBuilder = ImmutableList.builder();
 
-        File[] jarFiles = dir.listFiles((dir1, name) -> name.endsWith(".jar"));
+        File[] jarFiles = dir.listFiles((dir1, name) -> name.endsWith(".jar")
+                && filter.accept(new File(dir1, name).toPath(), false));
         if (jarFiles != null) {
             Arrays.sort(jarFiles);
-            for (File file : jarFiles) {
-                Bundle bundle = installOrUpdateBundle(file, false);
-                if (bundle != null) {
-                    bundlesBuilder.add(bundle);
-                }
-            }
+            jarsBuilder.add(jarFiles);
         }
 
         File[] subDirs = dir.listFiles(File::isDirectory);
         if (subDirs != null) {
             Arrays.sort(subDirs);
             for (File subDir : subDirs) {
-                bundlesBuilder.addAll(installDirectory(subDir));
+                collectJars(subDir, jarsBuilder, filter);
             }
         }
+    }
+
+    private ImmutableList<File> deduplicate(List<File> jars) {
+        JarDeduplicator.Result scan = deduplicator.scan(jars);
+        scan.logSummary("Watch");
+        if (scan.hasConflicts() && config.failOnConflictingDuplicates) {
+            LOGGER.error("Conflicting duplicate bundles, not installing: {}",
+                    Joiner.on(", ").join(Iterables.filter(scan.conflicts.values(), jars::contains)));
+            scan = scan.withoutConflicts();
+        }
+        deduplicator.commit(scan);
+        return scan.jars;
+    }
+
+    /**
+     * Checks and installs jars concurrently on the task executor. Jars of the
+     * same BSN go to the same task, in order, so the checker always sees the
+     * previous ones installed. Bundles are returned in the jars order.
+     */
+    private ImmutableList<Bundle> installJars(List<File> jars, boolean update) {
+        Map<String, List<File>> jarsByBsn = Maps.newLinkedHashMap();
+        for (File file : jars) {
+            String bsn = deduplicator.getBsn(file);
+            jarsByBsn.computeIfAbsent(bsn != null ? bsn : file.getPath(), k -> Lists.newArrayList()).add(file);
+        }
+
+        List<Future<Map<File, Bundle>>> futures = Lists.newArrayList();
+        for (List<File> group : jarsByBsn.values()) {
+            futures.add(taskExecutor.submit(() -> {
+                Map<File, Bundle> bundles = Maps.newHashMap();
+                for (File file : group) {
+                    Bundle bundle = installOrUpdateBundle(file, update);
+                    if (bundle != null) {
+                        bundles.put(file, bundle);
+                    }
+                }
+                return bundles;
+            }));
+        }
+
+        Map<File, Bundle> bundlesByFile = Maps.newHashMap();
+        for (Map<File, Bundle> bundles : Tasks.getAll(futures)) {
+            bundlesByFile.putAll(bundles);
+        }
 
+        ImmutableList.Builder<Bundle> bundlesBuilder = ImmutableList.builder();
+        for (File file : jars) {
+            Bundle bundle = bundlesByFile.get(file);
+            if (bundle != null) {
+                bundlesBuilder.add(bundle);
+            }
+        }
         return bundlesBuilder.build();
     }
 
     private DirWatcher createDirWatcher(File fileDir) {
+        WatchFilter filter = applicationFilter();
         FileChangeListener listener = new FileChangeListener() {
 
             @Override
             public void filesCreated(List<Path> pathes) {
-                List<Bundle> bundles = Lists.newArrayList();
+                ImmutableList.Builder<File> jarsBuilder = ImmutableList.builder();
                 for (Path path : pathes) {
                     File file = path.toFile();
                     if (file.isDirectory()) {
-                        bundles.addAll(installDirectory(file));
+                        collectJars(file, jarsBuilder, filter);
                     } else {
-                        Bundle b = installOrUpdateBundle(file, false);
-                        if (b != null) {
-                            bundles.add(b);
-                        }
+                        jarsBuilder.add(file);
                     }
                 }
-                startBundles(bundles);
+                startBundles(installJars(deduplicate(jarsBuilder.build()), false));
             }
 
             @Override
             public void filesUpdated(List<Path> pathes) {
-                List<Bundle> bundles = pathes.stream()
-                        .flatMap(path -> {
-                            if (Files.isDirectory(path)) {
-                                return installDirectory(path.toFile()).stream();
-                            } else {
-                                return Stream.of(installOrUpdateBundle(path.toFile(), true));
-                            }
-                        })
-                        .collect(Collectors.toList());
+                ImmutableList.Builder<File> dirJarsBuilder = ImmutableList.builder();
+                ImmutableList.Builder<File> updatedJarsBuilder = ImmutableList.builder();
+                for (Path path : pathes) {
+                    if (Files.isDirectory(path)) {
+                        collectJars(path.toFile(), dirJarsBuilder, filter);
+                    } else {
+                        updatedJarsBuilder.add(path.toFile());
+                    }
+                }
+                List<Bundle> bundles = Lists.newArrayList();
+                bundles.addAll(installJars(deduplicate(dirJarsBuilder.build()), false));
+                bundles.addAll(installJars(deduplicate(updatedJarsBuilder.build()), true));
                 startBundles(bundles);
             }
 
@@ -158,16 +401,32 @@ public final class BundleInstaller implements BundleActivator {
             }
         };
 
-        return new DirWatcher(fileDir.toPath(), 1500, listener);
+        return new DirWatcher(fileDir.toPath(), 1500, listener,
+                filter,
+                executionBackend.threadFactory("bndploy-watch"));
     }
 
     private Bundle installOrUpdateBundle(File file, boolean update) {
+        return installOrUpdateBundle(file, update, true);
+    }
+
+    private Bundle installOrUpdateBundle(File file, boolean update, boolean stopOnViolation) {
         try (JarFile jarFile = new JarFile(file)) {
 
+            Manifest manifest = jarFile.getManifest();
+            String headerBsn = manifest != null ? manifest.getMainAttributes().getValue("Bundle-SymbolicName") : null;
+            if (headerBsn != null) {
+                knownJars.put(file, BundleUtils.getBsn(headerBsn));
+            }
+
             Action action = bundleChecker.getAction(jarFile, update);
             if (action == Action.NONE) {
                 return null;
             }
+            if (action == Action.STOP_FRAMEWORK && !stopOnViolation) {
+                LOGGER.error("Not stopping the framework for {} on config reload, restart to enforce the rule", file);
+                return null;
+            }
             try (FileInputStream inputStream = new FileInputStream(file)) {
 
                 Bundle bundle = null;
@@ -195,8 +454,7 @@ public final class BundleInstaller implements BundleActivator {
                         bundle = context.installBundle(location, wrappingStream);
                         break;
                     case STOP_FRAMEWORK:
-                        LOGGER.info("Stopping the framework!");
-                        context.getBundle(0).stop();
+                        stopFramework();
                     default:
                         break;
                 }
@@ -212,6 +470,15 @@ public final class BundleInstaller implements BundleActivator {
         return null;
     }
 
+    private void stopFramework() {
+        LOGGER.info("Stopping the framework!");
+        try {
+            context.getBundle(0).stop();
+        } catch (BundleException e) {
+            LOGGER.error("Couldn't stop the framework", e);
+        }
+    }
+
     private void startBundles(Iterable<Bundle> bundles) {
         for (Bundle b : bundles) {
             try {
@@ -243,13 +510,19 @@ public final class BundleInstaller implements BundleActivator {
 
     @Override
     public void stop(BundleContext context) throws Exception {
-        bundleChecker.dispose();
+        if (configWatcher != null) {
+            configWatcher.stop();
+        }
 
-        if (config.watchApplicationDirs) {
-            for (DirWatcher watcher : watchers.values()) {
-                watcher.stop();
-            }
+        for (DirWatcher watcher : watchers.values()) {
+            watcher.stop();
         }
+
+        if (taskExecutor != null) {
+            Tasks.shutdown(taskExecutor, 30, TimeUnit.SECONDS);
+        }
+
+        bundleChecker.dispose();
     }
 
 }
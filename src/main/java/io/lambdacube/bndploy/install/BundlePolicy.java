@@ -0,0 +1,48 @@
+package io.lambdacube.bndploy.install;
+
+import org.osgi.framework.Version;
+
+/**
+ * Resolved policy for a BSN, remembering which namespace each part of the
+ * decision came from.
+ */
+public final class BundlePolicy {
+    private static final String SNAPSHOT_QUALIFIER = "snapshot";
+
+    public enum UpdateMode {
+        ALWAYS, ONLY_SNAPSHOTS, NEVER
+    }
+
+    public final boolean unique;
+
+    public final UpdateMode updateMode;
+
+    public final String uniqueSource;
+
+    public final String updateSource;
+
+    public BundlePolicy(boolean unique, UpdateMode updateMode, String uniqueSource, String updateSource) {
+        this.unique = unique;
+        this.updateMode = updateMode;
+        this.uniqueSource = uniqueSource;
+        this.updateSource = updateSource;
+    }
+
+    public boolean allowsUpdate(Version version) {
+        switch (updateMode) {
+            case ALWAYS:
+                return true;
+            case ONLY_SNAPSHOTS:
+                return SNAPSHOT_QUALIFIER.equalsIgnoreCase(version.getQualifier());
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (unique ? "unique" : "multiple versions") + " (from " + uniqueSource + "), update " + updateMode
+                + " (from " + updateSource + ")";
+    }
+
+}
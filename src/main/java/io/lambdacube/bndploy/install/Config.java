@@ -1,6 +1,7 @@
 package io.lambdacube.bndploy.install;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
 
 public final class Config {
 
@@ -10,17 +11,46 @@ public final class Config {
 
     public final boolean watchApplicationDirs;
 
+    public final ImmutableList<String> watchIncludes;
+
+    public final ImmutableList<String> watchExcludes;
+
     public final ImmutableList<String> singletonNamespaces;
 
     public final boolean updateOnlySnapshots;
 
+    public final ImmutableSetMultimap<NamespaceRule, String> namespaceRules;
+
+    public final NamespacePolicy namespacePolicy;
+
+    public final boolean failOnConflictingDuplicates;
+
+    public final String executor;
+
     public Config(ImmutableList<String> runtimeDirs, ImmutableList<String> applicationDirs,
-            boolean watchApplicationDirs, ImmutableList<String> singletonNamespaces, boolean updateOnlySnapshots) {
+            boolean watchApplicationDirs, ImmutableList<String> watchIncludes, ImmutableList<String> watchExcludes,
+            ImmutableList<String> singletonNamespaces, boolean updateOnlySnapshots,
+            ImmutableSetMultimap<NamespaceRule, String> namespaceRules, boolean failOnConflictingDuplicates,
+            String executor) {
         this.runtimeDirs = runtimeDirs;
         this.applicationDirs = applicationDirs;
         this.watchApplicationDirs = watchApplicationDirs;
+        this.watchIncludes = watchIncludes;
+        this.watchExcludes = watchExcludes;
         this.singletonNamespaces = singletonNamespaces;
         this.updateOnlySnapshots = updateOnlySnapshots;
+        this.namespaceRules = ImmutableSetMultimap.<NamespaceRule, String> builder()
+                .putAll(namespaceRules)
+                .putAll(NamespaceRule.UNIQUE, singletonNamespaces)
+                .build();
+        this.namespacePolicy = NamespacePolicy.compile(this.namespaceRules, updateOnlySnapshots);
+        this.failOnConflictingDuplicates = failOnConflictingDuplicates;
+        this.executor = executor;
+    }
+
+    public Config withDirs(ImmutableList<String> runtimeDirs, ImmutableList<String> applicationDirs) {
+        return new Config(runtimeDirs, applicationDirs, watchApplicationDirs, watchIncludes, watchExcludes,
+                singletonNamespaces, updateOnlySnapshots, namespaceRules, failOnConflictingDuplicates, executor);
     }
 
 }
@@ -0,0 +1,92 @@
+package io.lambdacube.bndploy.install;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Sets;
+
+/**
+ * Delta between two {@link Config}s, used to apply a reloaded configuration
+ * without redeploying everything.
+ */
+public final class ConfigDiff {
+
+    public final ImmutableSet<String> addedRuntimeDirs;
+
+    public final ImmutableSet<String> addedApplicationDirs;
+
+    public final ImmutableSet<String> removedApplicationDirs;
+
+    public final boolean watchApplicationDirsChanged;
+
+    public final boolean watchFilterChanged;
+
+    public final ImmutableSet<String> changedNamespaces;
+
+    public final boolean defaultPolicyChanged;
+
+    public final boolean failOnConflictingDuplicatesChanged;
+
+    private ConfigDiff(ImmutableSet<String> addedRuntimeDirs, ImmutableSet<String> addedApplicationDirs,
+            ImmutableSet<String> removedApplicationDirs, boolean watchApplicationDirsChanged,
+            boolean watchFilterChanged, ImmutableSet<String> changedNamespaces, boolean defaultPolicyChanged,
+            boolean failOnConflictingDuplicatesChanged) {
+        this.addedRuntimeDirs = addedRuntimeDirs;
+        this.addedApplicationDirs = addedApplicationDirs;
+        this.removedApplicationDirs = removedApplicationDirs;
+        this.watchApplicationDirsChanged = watchApplicationDirsChanged;
+        this.watchFilterChanged = watchFilterChanged;
+        this.changedNamespaces = changedNamespaces;
+        this.defaultPolicyChanged = defaultPolicyChanged;
+        this.failOnConflictingDuplicatesChanged = failOnConflictingDuplicatesChanged;
+    }
+
+    public static ConfigDiff between(Config oldConfig, Config newConfig) {
+        ImmutableSet<String> oldRuntimeDirs = ImmutableSet.copyOf(oldConfig.runtimeDirs);
+        ImmutableSet<String> newRuntimeDirs = ImmutableSet.copyOf(newConfig.runtimeDirs);
+        ImmutableSet<String> oldApplicationDirs = ImmutableSet.copyOf(oldConfig.applicationDirs);
+        ImmutableSet<String> newApplicationDirs = ImmutableSet.copyOf(newConfig.applicationDirs);
+        ImmutableSetMultimap<String, NamespaceRule> oldRules = oldConfig.namespacePolicy.getRulesByNamespace();
+        ImmutableSetMultimap<String, NamespaceRule> newRules = newConfig.namespacePolicy.getRulesByNamespace();
+
+        ImmutableSet.Builder<String> changedNamespaces = ImmutableSet.builder();
+        for (String namespace : Sets.union(oldRules.keySet(), newRules.keySet())) {
+            if (!oldRules.get(namespace).equals(newRules.get(namespace))) {
+                changedNamespaces.add(namespace);
+            }
+        }
+
+        return new ConfigDiff(
+                Sets.difference(newRuntimeDirs, oldRuntimeDirs).immutableCopy(),
+                Sets.difference(newApplicationDirs, oldApplicationDirs).immutableCopy(),
+                Sets.difference(oldApplicationDirs, newApplicationDirs).immutableCopy(),
+                oldConfig.watchApplicationDirs != newConfig.watchApplicationDirs,
+                !oldConfig.watchIncludes.equals(newConfig.watchIncludes)
+                        || !oldConfig.watchExcludes.equals(newConfig.watchExcludes),
+                changedNamespaces.build(),
+                oldConfig.updateOnlySnapshots != newConfig.updateOnlySnapshots,
+                oldConfig.failOnConflictingDuplicates != newConfig.failOnConflictingDuplicates);
+    }
+
+    public boolean isEmpty() {
+        return addedRuntimeDirs.isEmpty() && addedApplicationDirs.isEmpty() && removedApplicationDirs.isEmpty()
+                && !watchApplicationDirsChanged && !watchFilterChanged && changedNamespaces.isEmpty() && !defaultPolicyChanged
+                && !failOnConflictingDuplicatesChanged;
+    }
+
+    public boolean affectsPolicies() {
+        return defaultPolicyChanged || !changedNamespaces.isEmpty();
+    }
+
+    public boolean affects(String bsn) {
+        if (defaultPolicyChanged) {
+            return true;
+        }
+        for (String namespace : changedNamespaces) {
+            if (bsn.startsWith(namespace)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
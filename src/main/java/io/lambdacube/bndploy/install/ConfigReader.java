@@ -4,10 +4,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Properties;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
+
+import io.lambdacube.bndploy.exec.ExecutionBackends;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,52 +32,94 @@ public final class ConfigReader {
     private static final String UPDATE_ONLY_SNAPSHOTS = "installer.updateOnlySnapshots";
     private static final String UPDATE_ONLY_SNAPSHOTS_DEFAULT = "true";
 
+    private static final String NAMESPACE_RULES_PREFIX = "installer.namespaces.";
+
+    private static final String FAIL_ON_CONFLICTING_DUPLICATES = "installer.duplicates.failOnConflict";
+    private static final String FAIL_ON_CONFLICTING_DUPLICATES_DEFAULT = "false";
+
+    private static final String EXECUTOR = "installer.executor";
+    private static final String EXECUTOR_DEFAULT = ExecutionBackends.AUTO;
+
 
     private static final String WATCH_APPLICATION_DIRS = "installer.application.dirs.watch";
     private static final String WATCH_APPLICATION_DIRS_DEFAULT = "true";
 
+    private static final String WATCH_INCLUDES = "installer.application.dirs.watch.includes";
+    private static final String WATCH_INCLUDES_DEFAULT = "*.jar";
+    private static final String WATCH_EXCLUDES = "installer.application.dirs.watch.excludes";
+    private static final String WATCH_EXCLUDES_DEFAULT = ".*,*~,*.tmp,*.part,*.swp,*.crdownload";
+
     private static final String CONFIG_PROPERTIES = "installer.cfg.properties";
 
     private static final Config DEFAULT_CONFIG = new Config(ImmutableList.of(RUNTIME_DIRS_DEFAULT),
-            ImmutableList.of(APPLICATION_DIRS_DEFAULT), true, ImmutableList.of(), true);
+            ImmutableList.of(APPLICATION_DIRS_DEFAULT), true, globs(WATCH_INCLUDES_DEFAULT), globs(WATCH_EXCLUDES_DEFAULT),
+            ImmutableList.of(), true, ImmutableSetMultimap.of(), false, EXECUTOR_DEFAULT);
 
+    private static ImmutableList<String> globs(String value) {
+        return ImmutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(value));
+    }
 
-    public Config getConfig() {
-        Properties prop = new Properties();
 
-        File propertiesFile = new File(CONFIG_DIR, CONFIG_PROPERTIES);
-        if (!propertiesFile.exists()) {
+    public Path getConfigPath() {
+        return new File(CONFIG_DIR, CONFIG_PROPERTIES).toPath();
+    }
+
+    public Config getConfig() {
+        if (!getConfigPath().toFile().exists()) {
             LOGGER.info("Couldn't read config, using default");
             return DEFAULT_CONFIG;
         }
 
-        try (InputStream inputStream = new FileInputStream(propertiesFile)) {
-            if (inputStream != null) {
-                prop.load(inputStream);
-
-                ImmutableList<String> runtimeDirs = ImmutableList.copyOf(Splitter.on(',').trimResults()
-                        .split(prop.getProperty(RUNTIME_DIRS, RUNTIME_DIRS_DEFAULT)));
-                ImmutableList<String> applicationDirs = ImmutableList.copyOf(Splitter.on(',').trimResults()
-                        .split(prop.getProperty(APPLICATION_DIRS, APPLICATION_DIRS_DEFAULT)));
-
-                ImmutableList<String> singletonNamespaces = ImmutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings()
-                        .split(prop.getProperty(UNIQUE_BSN_STARTSWITH, UNIQUE_BSN_STARTSWITH_DEFAULT)));
+        try {
+            return readConfig();
+        } catch (IOException e1) {
+            LOGGER.error("Couldn't read config, using default.");
+        }
 
-                boolean watchAppDirs = Boolean.valueOf(prop.getProperty(WATCH_APPLICATION_DIRS,
-                        WATCH_APPLICATION_DIRS_DEFAULT));
-                
-                boolean updateOnlySnapshots = Boolean.valueOf(prop.getProperty(UPDATE_ONLY_SNAPSHOTS,
-                        UPDATE_ONLY_SNAPSHOTS_DEFAULT));
+        return DEFAULT_CONFIG;
+    }
 
+    /**
+     * Reads the config file without falling back to the default config, so
+     * that a missing or unreadable file can be told apart from defaults.
+     */
+    public Config readConfig() throws IOException {
+        Properties prop = new Properties();
 
-                return new Config(runtimeDirs, applicationDirs, watchAppDirs, singletonNamespaces, updateOnlySnapshots);
+        File propertiesFile = getConfigPath().toFile();
+        try (InputStream inputStream = new FileInputStream(propertiesFile)) {
+            prop.load(inputStream);
+
+            ImmutableList<String> runtimeDirs = ImmutableList.copyOf(Splitter.on(',').trimResults()
+                    .split(prop.getProperty(RUNTIME_DIRS, RUNTIME_DIRS_DEFAULT)));
+            ImmutableList<String> applicationDirs = ImmutableList.copyOf(Splitter.on(',').trimResults()
+                    .split(prop.getProperty(APPLICATION_DIRS, APPLICATION_DIRS_DEFAULT)));
+
+            ImmutableList<String> singletonNamespaces = ImmutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings()
+                    .split(prop.getProperty(UNIQUE_BSN_STARTSWITH, UNIQUE_BSN_STARTSWITH_DEFAULT)));
+
+            boolean watchAppDirs = Boolean.valueOf(prop.getProperty(WATCH_APPLICATION_DIRS,
+                    WATCH_APPLICATION_DIRS_DEFAULT));
+            ImmutableList<String> watchIncludes = globs(prop.getProperty(WATCH_INCLUDES, WATCH_INCLUDES_DEFAULT));
+            ImmutableList<String> watchExcludes = globs(prop.getProperty(WATCH_EXCLUDES, WATCH_EXCLUDES_DEFAULT));
+            
+            boolean updateOnlySnapshots = Boolean.valueOf(prop.getProperty(UPDATE_ONLY_SNAPSHOTS,
+                    UPDATE_ONLY_SNAPSHOTS_DEFAULT));
+
+            ImmutableSetMultimap.Builder<NamespaceRule, String> namespaceRules = ImmutableSetMultimap.builder();
+            for (NamespaceRule rule : NamespaceRule.values()) {
+                namespaceRules.putAll(rule, Splitter.on(',').trimResults().omitEmptyStrings()
+                        .split(prop.getProperty(NAMESPACE_RULES_PREFIX + rule.key, "")));
             }
 
-        } catch (IOException e1) {
-            LOGGER.error("Couldn't read config, using default.");
-        }
+            boolean failOnConflictingDuplicates = Boolean.valueOf(prop.getProperty(FAIL_ON_CONFLICTING_DUPLICATES,
+                    FAIL_ON_CONFLICTING_DUPLICATES_DEFAULT));
 
-        return DEFAULT_CONFIG;
+            return new Config(runtimeDirs, applicationDirs, watchAppDirs, watchIncludes, watchExcludes,
+                    singletonNamespaces, updateOnlySnapshots,
+                    namespaceRules.build(), failOnConflictingDuplicates,
+                    prop.getProperty(EXECUTOR, EXECUTOR_DEFAULT).trim());
+        }
     }
 
 }
@@ -0,0 +1,246 @@
+package io.lambdacube.bndploy.install;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import io.lambdacube.bndploy.exec.Tasks;
+
+import org.osgi.framework.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fingerprints jars (content digest plus BSN/version) so that the same
+ * content found under several files is only installed once, and the same
+ * BSN/version with different contents is reported.
+ */
+public final class JarDeduplicator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JarDeduplicator.class);
+
+    public static final class Fingerprint {
+        public final File file;
+
+        public final HashCode digest;
+
+        /** Null if the jar isn't a bundle. */
+        public final String bsn;
+
+        /** bsn:version, or null if the jar isn't a bundle. */
+        public final String key;
+
+        private Fingerprint(File file, HashCode digest, String bsn, String key) {
+            this.file = file;
+            this.digest = digest;
+            this.bsn = bsn;
+            this.key = key;
+        }
+
+        public static Fingerprint of(File file) throws IOException {
+            HashCode digest = Files.asByteSource(file).hash(Hashing.sha256());
+            String bsn = null;
+            String key = null;
+            try (JarFile jarFile = new JarFile(file)) {
+                Manifest manifest = jarFile.getManifest();
+                String headerBsn = manifest != null ? manifest.getMainAttributes().getValue("Bundle-SymbolicName")
+                        : null;
+                if (headerBsn != null) {
+                    bsn = BundleUtils.getBsn(headerBsn);
+                    key = bsn + ':'
+                            + Version.parseVersion(manifest.getMainAttributes().getValue("Bundle-Version"));
+                }
+            }
+            return new Fingerprint(file, digest, bsn, key);
+        }
+    }
+
+    public static final class Result {
+        /** Files to go through the checker, in scan order. */
+        public final ImmutableList<File> jars;
+
+        /** Kept file to the skipped files with the same contents. */
+        public final ImmutableSetMultimap<File, File> duplicates;
+
+        /** bsn:version to the files carrying it with different contents. */
+        public final ImmutableSetMultimap<String, File> conflicts;
+
+        private final ImmutableList<Fingerprint> fingerprints;
+
+        private Result(ImmutableList<File> jars, ImmutableSetMultimap<File, File> duplicates,
+                ImmutableSetMultimap<String, File> conflicts, ImmutableList<Fingerprint> fingerprints) {
+            this.jars = jars;
+            this.duplicates = duplicates;
+            this.conflicts = conflicts;
+            this.fingerprints = fingerprints;
+        }
+
+        public boolean hasConflicts() {
+            return !conflicts.isEmpty();
+        }
+
+        /**
+         * The same result without the conflicting files, so that they are
+         * neither installed nor registered.
+         */
+        public Result withoutConflicts() {
+            ImmutableSet<File> conflicting = ImmutableSet.copyOf(conflicts.values());
+            return new Result(
+                    ImmutableList.copyOf(Iterables.filter(jars, jar -> !conflicting.contains(jar))),
+                    duplicates, ImmutableSetMultimap.of(),
+                    ImmutableList.copyOf(Iterables.filter(fingerprints,
+                            fingerprint -> !conflicting.contains(fingerprint.file))));
+        }
+
+        public void logSummary(String what) {
+            if (duplicates.isEmpty() && conflicts.isEmpty()) {
+                return;
+            }
+            LOGGER.info("{}: {} jars to check, {} duplicate copies skipped, {} conflicting bundles", what,
+                    jars.size(), duplicates.size(), conflicts.keySet().size());
+            for (Map.Entry<File, Collection<File>> duplicate : duplicates.asMap().entrySet()) {
+                LOGGER.info("Same contents as {}, skipping: {}", duplicate.getKey(),
+                        Joiner.on(", ").join(duplicate.getValue()));
+            }
+            for (Map.Entry<String, Collection<File>> conflict : conflicts.asMap().entrySet()) {
+                LOGGER.warn("Bundle {} found with different contents in: {}", conflict.getKey(),
+                        Joiner.on(", ").join(conflict.getValue()));
+            }
+        }
+    }
+
+    private final Map<HashCode, File> filesByDigest = Maps.newHashMap();
+
+    private final Map<File, Fingerprint> fingerprintsByFile = Maps.newHashMap();
+
+    private final Map<String, Fingerprint> fingerprintsByKey = Maps.newHashMap();
+
+    private final ExecutorService executor;
+
+    public JarDeduplicator(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Fingerprints the given jars against what was already registered and
+     * against each other. Nothing is registered until {@link #commit(Result)}.
+     * Jars are read and digested concurrently on the executor.
+     */
+    public Result scan(List<File> files) {
+        List<Future<Fingerprint>> futures = Lists.newArrayListWithCapacity(files.size());
+        for (File file : files) {
+            futures.add(executor.submit(() -> fingerprintOrNull(file)));
+        }
+        return scan(files, Tasks.getAll(futures));
+    }
+
+    private static Fingerprint fingerprintOrNull(File file) {
+        try {
+            return Fingerprint.of(file);
+        } catch (IOException e) {
+            // let the installer report it
+            return null;
+        }
+    }
+
+    private synchronized Result scan(List<File> files, List<Fingerprint> scanned) {
+        ImmutableList.Builder<File> jars = ImmutableList.builder();
+        ImmutableSetMultimap.Builder<File, File> duplicates = ImmutableSetMultimap.builder();
+        ImmutableSetMultimap.Builder<String, File> conflicts = ImmutableSetMultimap.builder();
+        ImmutableList.Builder<Fingerprint> fingerprints = ImmutableList.builder();
+
+        Map<HashCode, File> batchByDigest = Maps.newHashMap();
+        Map<String, Fingerprint> batchByKey = Maps.newHashMap();
+
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            Fingerprint fingerprint = scanned.get(i);
+            if (fingerprint == null) {
+                jars.add(file);
+                continue;
+            }
+
+            File sameContents = batchByDigest.get(fingerprint.digest);
+            if (sameContents == null) {
+                sameContents = filesByDigest.get(fingerprint.digest);
+            }
+            if (sameContents != null && !sameContents.equals(file) && sameContents.exists()) {
+                duplicates.put(sameContents, file);
+                continue;
+            }
+
+            if (fingerprint.key != null) {
+                Fingerprint sameKey = batchByKey.get(fingerprint.key);
+                if (sameKey == null) {
+                    sameKey = fingerprintsByKey.get(fingerprint.key);
+                }
+                if (sameKey != null && !sameKey.file.equals(file) && !sameKey.digest.equals(fingerprint.digest)
+                        && sameKey.file.exists()) {
+                    conflicts.put(fingerprint.key, sameKey.file);
+                    conflicts.put(fingerprint.key, file);
+                }
+                batchByKey.put(fingerprint.key, fingerprint);
+            }
+
+            batchByDigest.put(fingerprint.digest, file);
+            fingerprints.add(fingerprint);
+            jars.add(file);
+        }
+
+        return new Result(jars.build(), duplicates.build(), conflicts.build(), fingerprints.build());
+    }
+
+    public synchronized String getBsn(File file) {
+        Fingerprint fingerprint = fingerprintsByFile.get(file);
+        return fingerprint != null ? fingerprint.bsn : null;
+    }
+
+    /**
+     * Registers the scanned fingerprints. Files that were rescanned lose what
+     * was registered for their previous contents first, including the ones
+     * skipped because their new contents duplicate another file.
+     */
+    public synchronized void commit(Result result) {
+        for (File skipped : result.duplicates.values()) {
+            forget(skipped);
+        }
+        for (Fingerprint fingerprint : result.fingerprints) {
+            forget(fingerprint.file);
+            fingerprintsByFile.put(fingerprint.file, fingerprint);
+            filesByDigest.put(fingerprint.digest, fingerprint.file);
+            if (fingerprint.key != null) {
+                fingerprintsByKey.put(fingerprint.key, fingerprint);
+            }
+        }
+    }
+
+    private void forget(File file) {
+        Fingerprint previous = fingerprintsByFile.remove(file);
+        if (previous == null) {
+            return;
+        }
+        if (file.equals(filesByDigest.get(previous.digest))) {
+            filesByDigest.remove(previous.digest);
+        }
+        if (previous.key != null && previous == fingerprintsByKey.get(previous.key)) {
+            fingerprintsByKey.remove(previous.key);
+        }
+    }
+
+}
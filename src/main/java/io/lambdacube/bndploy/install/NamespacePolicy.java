@@ -0,0 +1,127 @@
+package io.lambdacube.bndploy.install;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.TreeMultimap;
+
+import io.lambdacube.bndploy.install.BundlePolicy.UpdateMode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Namespace rules compiled into a prefix trie. Each node holds the policy
+ * already resolved for its prefix (the longest configured prefix wins, per
+ * rule kind), so a lookup only walks the BSN and doesn't depend on how many
+ * rules are configured.
+ */
+public final class NamespacePolicy {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NamespacePolicy.class);
+
+    private static final String DEFAULT_SOURCE = "default";
+
+    private static final class Node {
+        private final Map<Character, Node> children = Maps.newHashMap();
+        private BundlePolicy policy;
+    }
+
+    private final Node root;
+
+    private final ImmutableSetMultimap<String, NamespaceRule> rulesByNamespace;
+
+    private NamespacePolicy(Node root, ImmutableSetMultimap<String, NamespaceRule> rulesByNamespace) {
+        this.root = root;
+        this.rulesByNamespace = rulesByNamespace;
+    }
+
+    public static NamespacePolicy compile(ImmutableSetMultimap<NamespaceRule, String> rules,
+            boolean updateOnlySnapshots) {
+        ImmutableSetMultimap<String, NamespaceRule> rulesByNamespace = rules.inverse();
+
+        Node root = new Node();
+        for (String namespace : rulesByNamespace.keySet()) {
+            Node node = root;
+            for (int i = 0; i < namespace.length(); i++) {
+                node = node.children.computeIfAbsent(namespace.charAt(i), c -> new Node());
+            }
+        }
+
+        UpdateMode defaultUpdateMode = updateOnlySnapshots ? UpdateMode.ONLY_SNAPSHOTS : UpdateMode.ALWAYS;
+        BundlePolicy defaultPolicy = new BundlePolicy(false, defaultUpdateMode, DEFAULT_SOURCE, DEFAULT_SOURCE);
+        resolve(root, "", defaultPolicy, rulesByNamespace);
+
+        return new NamespacePolicy(root, rulesByNamespace);
+    }
+
+    private static void resolve(Node node, String prefix, BundlePolicy inherited,
+            ImmutableSetMultimap<String, NamespaceRule> rulesByNamespace) {
+        BundlePolicy policy = inherited;
+        Set<NamespaceRule> rules = rulesByNamespace.get(prefix);
+        if (!rules.isEmpty()) {
+            boolean unique = policy.unique;
+            String uniqueSource = policy.uniqueSource;
+            if (rules.contains(NamespaceRule.UNIQUE)) {
+                if (rules.contains(NamespaceRule.ALLOW_MULTIPLE_VERSIONS)) {
+                    LOGGER.warn("Namespace {} is both {} and {}, keeping {}", prefix, NamespaceRule.UNIQUE.key,
+                            NamespaceRule.ALLOW_MULTIPLE_VERSIONS.key, NamespaceRule.UNIQUE.key);
+                }
+                unique = true;
+                uniqueSource = prefix;
+            } else if (rules.contains(NamespaceRule.ALLOW_MULTIPLE_VERSIONS)) {
+                unique = false;
+                uniqueSource = prefix;
+            }
+
+            UpdateMode updateMode = policy.updateMode;
+            String updateSource = policy.updateSource;
+            if (rules.contains(NamespaceRule.NEVER_UPDATE)) {
+                if (rules.contains(NamespaceRule.UPDATE_ONLY_SNAPSHOTS)) {
+                    LOGGER.warn("Namespace {} is both {} and {}, keeping {}", prefix, NamespaceRule.NEVER_UPDATE.key,
+                            NamespaceRule.UPDATE_ONLY_SNAPSHOTS.key, NamespaceRule.NEVER_UPDATE.key);
+                }
+                updateMode = UpdateMode.NEVER;
+                updateSource = prefix;
+            } else if (rules.contains(NamespaceRule.UPDATE_ONLY_SNAPSHOTS)) {
+                updateMode = UpdateMode.ONLY_SNAPSHOTS;
+                updateSource = prefix;
+            }
+            policy = new BundlePolicy(unique, updateMode, uniqueSource, updateSource);
+        }
+        node.policy = policy;
+
+        for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+            resolve(child.getValue(), prefix + child.getKey(), policy, rulesByNamespace);
+        }
+    }
+
+    public BundlePolicy lookup(String bsn) {
+        Node node = root;
+        for (int i = 0; i < bsn.length(); i++) {
+            Node child = node.children.get(bsn.charAt(i));
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+        return node.policy;
+    }
+
+    public ImmutableSetMultimap<String, NamespaceRule> getRulesByNamespace() {
+        return rulesByNamespace;
+    }
+
+    public String dump() {
+        StringBuilder buf = new StringBuilder("Namespace policy:\n");
+        buf.append("  <default>: ").append(root.policy).append('\n');
+        TreeMultimap<String, NamespaceRule> sorted = TreeMultimap.create(rulesByNamespace);
+        for (String namespace : sorted.keySet()) {
+            buf.append("  ").append(namespace).append(' ').append(sorted.get(namespace)).append(": ")
+                    .append(lookup(namespace)).append('\n');
+        }
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,19 @@
+package io.lambdacube.bndploy.install;
+
+/**
+ * Rules that can be attached to a BSN namespace (a BSN prefix) in the
+ * installer config, e.g. {@code installer.namespaces.neverUpdate=org.foo.}.
+ */
+public enum NamespaceRule {
+    UNIQUE("unique"),
+    ALLOW_MULTIPLE_VERSIONS("allowMultipleVersions"),
+    UPDATE_ONLY_SNAPSHOTS("updateOnlySnapshots"),
+    NEVER_UPDATE("neverUpdate");
+
+    public final String key;
+
+    NamespaceRule(String key) {
+        this.key = key;
+    }
+
+}
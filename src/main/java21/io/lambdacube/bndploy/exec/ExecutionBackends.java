@@ -0,0 +1,31 @@
+package io.lambdacube.bndploy.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the {@link ExecutionBackend}. This is the Java 21 version, which
+ * uses virtual threads unless platform threads are asked for.
+ */
+public final class ExecutionBackends {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionBackends.class);
+
+    public static final String AUTO = "auto";
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    private ExecutionBackends() {
+    }
+
+    public static ExecutionBackend create(String preference) {
+        if (!AUTO.equals(preference) && !PLATFORM.equals(preference) && !VIRTUAL.equals(preference)) {
+            LOGGER.warn("Unknown executor '{}', expected {}, {} or {}; using {}", preference, AUTO, PLATFORM, VIRTUAL,
+                    AUTO);
+        }
+        if (PLATFORM.equals(preference)) {
+            return new PlatformExecutionBackend();
+        }
+        return new VirtualThreadExecutionBackend();
+    }
+
+}
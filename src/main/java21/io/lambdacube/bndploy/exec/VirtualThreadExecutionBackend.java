@@ -0,0 +1,28 @@
+package io.lambdacube.bndploy.exec;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * One virtual thread per task, so blocking jar I/O doesn't need a sized
+ * pool.
+ */
+final class VirtualThreadExecutionBackend implements ExecutionBackend {
+
+    @Override
+    public String getName() {
+        return "virtual threads";
+    }
+
+    @Override
+    public ThreadFactory threadFactory(String name) {
+        return Thread.ofVirtual().name(name + "-", 1).factory();
+    }
+
+    @Override
+    public ExecutorService newTaskExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(threadFactory(name));
+    }
+
+}